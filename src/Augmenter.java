@@ -0,0 +1,151 @@
+import java.util.concurrent.*;
+
+/**
+ * Produces randomly augmented copies of the training images on worker threads while the network trains. Each copy is
+ * a training image that has been shifted, flipped, thresholded, and given noise, and the copies are handed to the
+ * network through a bounded buffer so that the images never need to be stored. Which worker's images are taken, and
+ * how many are not ready in time, depends on thread scheduling, so training with augmentation is not reproducible
+ * even with a fixed seed.
+ *
+ * @author Brandon Park
+ * @version 10/19/26
+ */
+public class Augmenter {
+    double[][] inputSets;
+    double[][] outputSets;
+    int width, height;
+
+    int maxShift;
+    boolean flipHorizontal;
+    double noiseDeviation;
+    double thresholdJitter;
+
+    RandomGenerator generator;
+    Thread[] workers;
+    BlockingQueue<double[][]> buffer;
+
+    /*
+     * The exception that stopped a worker thread, if any, which is reported by the next call to poll.
+     */
+    volatile RuntimeException failure;
+
+    /**
+     * Constructs a new Augmenter object.
+     *
+     * @param inputSets       the input values of the training sets, as flattened images.
+     * @param outputSets      the output values of the training sets.
+     * @param width           the width of each image in pixels.
+     * @param height          the height of each image in pixels.
+     * @param maxShift        the largest number of pixels an image is shifted by in each direction.
+     * @param flipHorizontal  whether images are mirrored left to right half of the time.
+     * @param noiseDeviation  the standard deviation of the noise added to each pixel.
+     * @param thresholdJitter the largest amount, in pixel intensity from 0 to 255, that the black threshold is raised.
+     * @param workers         the number of worker threads producing images.
+     * @param bufferSize      the number of produced images that can wait in the buffer.
+     * @param generator       the generator that each worker's generator is split from.
+     */
+    public Augmenter(double[][] inputSets, double[][] outputSets, int width, int height, int maxShift,
+                     boolean flipHorizontal, double noiseDeviation, double thresholdJitter, int workers,
+                     int bufferSize, RandomGenerator generator) {
+        this.inputSets = inputSets;
+        this.outputSets = outputSets;
+        this.width = width;
+        this.height = height;
+        this.maxShift = maxShift;
+        this.flipHorizontal = flipHorizontal;
+        this.noiseDeviation = noiseDeviation;
+        this.thresholdJitter = thresholdJitter;
+        this.generator = generator;
+        this.workers = new Thread[workers];
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * Starts the worker threads, each of which keeps producing images until the buffer is full and then waits for
+     * space.
+     */
+    public void start() {
+        for (int w = 0; w < workers.length; w++) {
+            RandomGenerator workerGenerator = generator.split();
+
+            workers[w] = new Thread(() -> {
+                try {
+                    while (true) {
+                        int t = workerGenerator.randomInt(inputSets.length);
+                        buffer.put(new double[][]{augment(inputSets[t], workerGenerator), outputSets[t]});
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped by stop().
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            });
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+    }
+
+    /**
+     * Stops the worker threads and empties the buffer.
+     */
+    public void stop() {
+        for (int w = 0; w < workers.length; w++)
+            workers[w].interrupt();
+        buffer.clear();
+    }
+
+    /**
+     * Takes the next augmented image from the buffer without waiting, aborting the process if a worker thread has
+     * failed.
+     *
+     * @return returns an array containing the input values and output values of the augmented image, or null if none
+     * are ready.
+     */
+    public double[][] poll() {
+        if (failure != null) {
+            System.out.println(failure.getMessage());
+            System.out.println("Exception occurred while augmenting images. Aborting process.");
+            System.exit(1);
+        }
+
+        return buffer.poll();
+    }
+
+    /**
+     * Creates an augmented copy of an image.
+     *
+     * @param image     the image as a flattened array of pixels, row by row.
+     * @param generator the generator used for the random augmentations.
+     * @return returns the augmented copy of the image.
+     */
+    private double[] augment(double[] image, RandomGenerator generator) {
+        double[] augmented = new double[image.length];
+
+        int shiftX = generator.randomInt(2 * maxShift + 1) - maxShift;
+        int shiftY = generator.randomInt(2 * maxShift + 1) - maxShift;
+        boolean flip = flipHorizontal && generator.randomInt(2) == 0;
+        double threshold = (ImageProcessor.THRESHOLD + generator.random(0.0, thresholdJitter)) / 255.0;
+
+        for (int row = 0; row < height; row++) {
+            int sourceRow = row - shiftY;
+            if (sourceRow < 0 || sourceRow >= height)
+                continue;
+
+            for (int col = 0; col < width; col++) {
+                int sourceCol = (flip ? width - 1 - col : col) - shiftX;
+                if (sourceCol < 0 || sourceCol >= width)
+                    continue;
+
+                double pixel = image[sourceRow * width + sourceCol];
+                if (pixel < threshold)
+                    pixel = 0.0;
+                if (noiseDeviation > 0.0)
+                    pixel = Math.min(1.0, Math.max(0.0, pixel + generator.gaussian(0.0, noiseDeviation)));
+
+                augmented[row * width + col] = pixel;
+            }
+        }
+
+        return augmented;
+    }
+}
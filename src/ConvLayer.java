@@ -0,0 +1,152 @@
+/**
+ * Models a convolution and max pooling stage that sits in front of the perceptron's input layer. Each filter is slid
+ * over the image with a stride of 1, passed through the sigmoid, and then reduced by taking the maximum of each
+ * non-overlapping square of pooled pixels.
+ *
+ * @author Brandon Park
+ * @version 10/19/26
+ */
+public class ConvLayer {
+    public int width, height;
+    public int filters, kernelSize, poolSize;
+    public int convWidth, convHeight, pooledWidth, pooledHeight;
+
+    public double[][] K;
+    public double[] bias;
+
+    double[] image;
+    public double[] output;
+    int[] maxIndex;
+
+    /**
+     * Constructs a new ConvLayer object and initializes its dimensions.
+     *
+     * @param width      the width of the input image in pixels.
+     * @param height     the height of the input image in pixels.
+     * @param filters    the number of convolution filters.
+     * @param kernelSize the width and height of each filter.
+     * @param poolSize   the width and height of each pooled square.
+     */
+    public ConvLayer(int width, int height, int filters, int kernelSize, int poolSize) {
+        this.width = width;
+        this.height = height;
+        this.filters = filters;
+        this.kernelSize = kernelSize;
+        this.poolSize = poolSize;
+
+        convWidth = width - kernelSize + 1;
+        convHeight = height - kernelSize + 1;
+        pooledWidth = convWidth / poolSize;
+        pooledHeight = convHeight / poolSize;
+
+        if (pooledWidth <= 0 || pooledHeight <= 0) {
+            System.out.println("Convolution kernel and pool sizes are too large for a " + width + "x" + height +
+                    " image. Aborting process.");
+            System.exit(1);
+        }
+
+        K = new double[filters][kernelSize * kernelSize];
+        bias = new double[filters];
+
+        output = new double[outputSize()];
+        maxIndex = new int[outputSize()];
+    }
+
+    /**
+     * Calculates the number of values the stage produces, which becomes the number of input nodes of the perceptron.
+     *
+     * @return returns the number of pooled values across every filter.
+     */
+    public int outputSize() {
+        return filters * pooledWidth * pooledHeight;
+    }
+
+    /**
+     * Initializes the filters to random values according to an initialization scheme, treating each filter as having
+     * a fan in and fan out of kernelSize^2. Biases are drawn between min and max for the uniform scheme and start at 0
+     * otherwise.
+     *
+     * @param scheme    the initialization scheme, either "uniform", "xavier", or "he".
+     * @param min       the lower bound of uniform random generation (inclusive).
+     * @param max       the upper bound of uniform random generation (exclusive).
+     * @param generator the generator used for the random values.
+     */
+    public void randomize(String scheme, double min, double max, RandomGenerator generator) {
+        int fan = kernelSize * kernelSize;
+
+        for (int f = 0; f < filters; f++) {
+            for (int p = 0; p < K[f].length; p++)
+                K[f][p] = WeightsHandler.randomWeight(scheme, fan, fan, min, max, generator);
+            bias[f] = scheme.equals("uniform") ? generator.random(min, max) : 0.0;
+        }
+    }
+
+    /**
+     * Convolves and pools an image, remembering which pixel won each pooled square for use in backpropagation.
+     *
+     * @param inputImage the image as a flattened array of pixels, row by row.
+     * @return returns the pooled values, filter by filter and then row by row. The array is reused by the next call.
+     */
+    public double[] forward(double[] inputImage) {
+        image = inputImage;
+
+        for (int f = 0; f < filters; f++) {
+            double[] kernel = K[f];
+
+            for (int py = 0; py < pooledHeight; py++) {
+                for (int px = 0; px < pooledWidth; px++) {
+                    int o = (f * pooledHeight + py) * pooledWidth + px;
+                    double max = Double.NEGATIVE_INFINITY;
+
+                    for (int y = py * poolSize; y < (py + 1) * poolSize; y++) {
+                        for (int x = px * poolSize; x < (px + 1) * poolSize; x++) {
+                            double theta = bias[f];
+
+                            for (int dy = 0; dy < kernelSize; dy++) {
+                                int row = (y + dy) * width + x;
+                                for (int dx = 0; dx < kernelSize; dx++)
+                                    theta += kernel[dy * kernelSize + dx] * inputImage[row + dx];
+                            }
+
+                            double activation = Perceptron.sigmoid(theta);
+                            if (activation > max) {
+                                max = activation;
+                                maxIndex[o] = y * width + x;
+                            }
+                        }
+                    }
+
+                    output[o] = max;
+                }
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Backpropagates into the filters from the most recent forward pass. Only the pixel that won each pooled square
+     * receives an update.
+     *
+     * @param omega  the weighted sum of the psi values flowing back into each pooled value.
+     * @param lambda the learning rate applied to each weight change.
+     */
+    public void backpropagate(double[] omega, double lambda) {
+        for (int f = 0; f < filters; f++) {
+            double[] kernel = K[f];
+
+            for (int o = f * pooledHeight * pooledWidth; o < (f + 1) * pooledHeight * pooledWidth; o++) {
+                double psi = omega[o] * output[o] * (1.0 - output[o]);
+                int corner = maxIndex[o];
+
+                for (int dy = 0; dy < kernelSize; dy++) {
+                    int row = corner + dy * width;
+                    for (int dx = 0; dx < kernelSize; dx++)
+                        kernel[dy * kernelSize + dx] += lambda * image[row + dx] * psi;
+                }
+
+                bias[f] += lambda * psi;
+            }
+        }
+    }
+}
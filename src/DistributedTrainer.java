@@ -0,0 +1,266 @@
+import java.util.*;
+import java.io.*;
+import java.net.*;
+
+/**
+ * Trains a perceptron across several processes by parameter averaging. A coordinator sends the starting weights to
+ * every worker, each worker trains on its own shard of the training sets for a number of training cycles, and the
+ * coordinator then averages the workers' weights, weighted by shard size, and sends the average back for the next
+ * round. Weights travel over TCP as raw binary doubles.
+ *
+ * @author Brandon Park
+ * @version 10/19/26
+ */
+public class DistributedTrainer {
+    static final int CONNECT_ATTEMPTS = 100;
+    static final int CONNECT_DELAY = 100;
+
+    /**
+     * Gathers every trainable weight of a perceptron, including its convolution stage if it has one, as an array of
+     * rows that share storage with the perceptron.
+     *
+     * @param perceptron the perceptron.
+     * @return returns the rows of weights.
+     */
+    static double[][] parameters(Perceptron perceptron) {
+        int rows = 0;
+        for (int n = 0; n < perceptron.W.length; n++)
+            rows += perceptron.W[n].length;
+        if (perceptron.conv != null)
+            rows += perceptron.conv.K.length + 1;
+
+        double[][] parameters = new double[rows][];
+        int row = 0;
+        for (int n = 0; n < perceptron.W.length; n++) {
+            for (int a = 0; a < perceptron.W[n].length; a++)
+                parameters[row++] = perceptron.W[n][a];
+        }
+        if (perceptron.conv != null) {
+            for (int f = 0; f < perceptron.conv.K.length; f++)
+                parameters[row++] = perceptron.conv.K[f];
+            parameters[row] = perceptron.conv.bias;
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Counts the weights in an array of rows.
+     *
+     * @param parameters the rows of weights.
+     * @return returns the total number of weights.
+     */
+    static int count(double[][] parameters) {
+        int count = 0;
+        for (int row = 0; row < parameters.length; row++)
+            count += parameters[row].length;
+        return count;
+    }
+
+    /**
+     * Coordinates training across workers, averaging their weights every syncInterval training cycles until the max
+     * number of iterations is reached or the total error of the averaged weights over the training sets is below the
+     * threshold.
+     *
+     * @param perceptron     the perceptron holding the starting weights, which receives the averaged weights.
+     * @param port           the port to listen for workers on.
+     * @param workers        the number of workers to wait for.
+     * @param maxIterations  the max number of training cycles, rounded up to a multiple of syncInterval.
+     * @param syncInterval   the number of training cycles each worker runs between averages.
+     * @param errorThreshold the error threshold to be reached.
+     * @param trainInput     the input values of the training set.
+     * @param trainOutput    the output values of the training set.
+     */
+    public static void coordinate(Perceptron perceptron, int port, int workers, int maxIterations, int syncInterval,
+                                  double errorThreshold, double[][] trainInput, double[][] trainOutput) {
+        double[][] parameters = parameters(perceptron);
+        double[][] received = new double[parameters.length][];
+        for (int row = 0; row < parameters.length; row++)
+            received[row] = new double[parameters[row].length];
+
+        Socket[] sockets = new Socket[workers];
+        DataInputStream[] in = new DataInputStream[workers];
+        DataOutputStream[] out = new DataOutputStream[workers];
+        int[] shardSizes = new int[workers];
+
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Waiting for " + workers + " workers on port " + port + ".");
+
+            for (int w = 0; w < workers; w++) {
+                sockets[w] = server.accept();
+                sockets[w].setTcpNoDelay(true);
+                in[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream()));
+                out[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream()));
+
+                out[w].writeInt(w);
+                out[w].writeInt(workers);
+                out[w].flush();
+
+                if (in[w].readInt() != count(parameters)) {
+                    System.out.println("Worker " + w + " does not match network structure. Aborting process.");
+                    System.exit(1);
+                }
+                shardSizes[w] = in[w].readInt();
+                System.out.println("Worker " + w + " connected with " + shardSizes[w] + " training sets.");
+            }
+
+            for (int w = 0; w < workers; w++) {
+                WeightsHandler.writeBinaryWeights(parameters, out[w]);
+                out[w].flush();
+            }
+
+            long startTime = System.currentTimeMillis();
+            int iteration = 0;
+            boolean done = false;
+
+            while (!done) {
+                iteration += syncInterval;
+
+                for (int row = 0; row < parameters.length; row++)
+                    Arrays.fill(parameters[row], 0.0);
+
+                for (int w = 0; w < workers; w++) {
+                    WeightsHandler.readBinaryWeights(received, in[w]);
+
+                    double share = (double) shardSizes[w] / trainInput.length;
+                    for (int row = 0; row < parameters.length; row++) {
+                        for (int p = 0; p < parameters[row].length; p++)
+                            parameters[row][p] += share * received[row][p];
+                    }
+                }
+
+                perceptron.totalError = 0.0;
+                for (int t = 0; t < trainInput.length; t++) {
+                    perceptron.run(trainInput[t]);
+                    perceptron.totalError += Perceptron.error(perceptron.a[3], trainOutput[t], perceptron.softmax);
+                }
+
+                if (perceptron.printDetailed)
+                    System.out.println("Iteration " + iteration + "'s total error is " + perceptron.totalError + ".");
+
+                if (iteration >= maxIterations) {
+                    System.out.println();
+                    System.out.println("Max number of iterations reached (" + iteration + ").");
+                    done = true;
+                } else if (perceptron.totalError < errorThreshold) {
+                    System.out.println();
+                    System.out.println(iteration + " total iterations.");
+                    System.out.println("Error threshold met: " + perceptron.totalError + " total error compared to threshold " + errorThreshold + ".");
+                    done = true;
+                }
+
+                for (int w = 0; w < workers; w++) {
+                    out[w].writeBoolean(done);
+                    WeightsHandler.writeBinaryWeights(parameters, out[w]);
+                    out[w].flush();
+                }
+            }
+
+            double elapsed = System.currentTimeMillis() - startTime;
+            System.out.println(elapsed + "ms elapsed.");
+            System.out.println((double) iteration * trainInput.length / (elapsed / 1000.0) + " training sets per second across " + workers + " workers.");
+
+            for (int w = 0; w < workers; w++)
+                sockets[w].close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Exception occurred while coordinating workers. Aborting process.");
+            System.exit(1);
+        }
+
+        for (int t = 0; t < trainInput.length; t++)
+            perceptron.runWithOutput(trainInput[t], trainOutput[t]);
+        perceptron.printAccuracy(trainInput.length);
+    }
+
+    /**
+     * Connects to a coordinator and trains on this worker's shard of the training sets, sending its weights to the
+     * coordinator and taking back the averaged weights every syncInterval training cycles until told to stop.
+     *
+     * @param perceptron   the perceptron to train.
+     * @param host         the host of the coordinator.
+     * @param port         the port of the coordinator.
+     * @param syncInterval the number of training cycles between averages.
+     * @param lambda       the learning rate applied to each weight change.
+     * @param trainInput   the input values of the training set.
+     * @param trainOutput  the output values of the training set.
+     */
+    public static void work(Perceptron perceptron, String host, int port, int syncInterval, double lambda,
+                            double[][] trainInput, double[][] trainOutput) {
+        double[][] parameters = parameters(perceptron);
+
+        try (Socket socket = connect(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            int index = in.readInt();
+            int workers = in.readInt();
+
+            int shardSize = (trainInput.length - index + workers - 1) / workers;
+            if (shardSize == 0) {
+                System.out.println("More workers than training sets. Aborting process.");
+                System.exit(1);
+            }
+
+            double[][] shardInput = new double[shardSize][];
+            double[][] shardOutput = new double[shardSize][];
+            for (int t = 0; t < shardSize; t++) {
+                shardInput[t] = trainInput[index + t * workers];
+                shardOutput[t] = trainOutput[index + t * workers];
+            }
+
+            System.out.println("Connected as worker " + index + " of " + workers + " with " + shardSize + " training sets.");
+
+            out.writeInt(count(parameters));
+            out.writeInt(shardSize);
+            out.flush();
+
+            WeightsHandler.readBinaryWeights(parameters, in);
+            perceptron.initTraining(shardSize);
+
+            boolean done = false;
+            while (!done) {
+                for (int cycle = 0; cycle < syncInterval; cycle++)
+                    perceptron.trainCycle(lambda, shardInput, shardOutput);
+
+                WeightsHandler.writeBinaryWeights(parameters, out);
+                out.flush();
+
+                done = in.readBoolean();
+                WeightsHandler.readBinaryWeights(parameters, in);
+            }
+
+            System.out.println("Worker " + index + " finished.");
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Exception occurred while communicating with coordinator. Aborting process.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Connects to the coordinator, retrying for a while in case it has not started listening yet.
+     *
+     * @param host the host of the coordinator.
+     * @param port the port of the coordinator.
+     * @return returns the connected socket.
+     * @throws IOException if the coordinator cannot be reached.
+     */
+    private static Socket connect(String host, int port) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS)
+                    throw e;
+
+                try {
+                    Thread.sleep(CONNECT_DELAY);
+                } catch (InterruptedException interrupted) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -4,9 +4,14 @@ import java.io.*;
  * Reads in images from a directory and processes them for use in the network.
  *
  * @author Eric Nelson, adapted by Brandon Park
- * @version 8/31/22
+ * @version 10/19/26
  */
 public class ImageProcessor {
+    /*
+     * Pixels darker than this intensity, from 0 to 255, are treated as black.
+     */
+    public static final int THRESHOLD = 75;
+
     private static int swapInt(int v) {
         return ((v >>> 24) | (v << 24) | ((v << 8) & 0x00FF0000) | ((v >> 8) & 0x0000FF00));
     }
@@ -100,9 +105,10 @@ public class ImageProcessor {
      * Gets and processes the image at a given file path for use in the network.
      *
      * @param filePath the file path of the image file.
-     * @return returns the image formatted as an array of doubles corresponding to each pixel in black and white.
+     * @return returns the image formatted as a 2-dimensional array of doubles corresponding to each pixel in black
+     * and white, row by row.
      */
-    public static double[] getImage(String filePath) {
+    public static double[][] getImage(String filePath) {
         int[][] imageArray = null;
 
         try {
@@ -113,16 +119,33 @@ public class ImageProcessor {
             System.exit(1);
         }
 
-        double[] flattenedImage = new double[imageArray.length * imageArray[0].length];
+        double[][] image = new double[imageArray.length][imageArray[0].length];
 
         for (int row = 0; row < imageArray.length; row++) {
             for (int col = 0; col < imageArray[0].length; col++) {
-                if (imageArray[row][col] < 75)
+                if (imageArray[row][col] < THRESHOLD)
                     imageArray[row][col] = 0;
-                flattenedImage[row * imageArray[0].length + col] = imageArray[row][col] / 255.0;
+                image[row][col] = imageArray[row][col] / 255.0;
             }
         }
 
+        return image;
+    }
+
+    /**
+     * Flattens an image row by row for use as the input values of the network.
+     *
+     * @param image the image as a 2-dimensional array of pixels.
+     * @return returns the image as an array of pixels, row by row.
+     */
+    public static double[] flatten(double[][] image) {
+        double[] flattenedImage = new double[image.length * image[0].length];
+
+        for (int row = 0; row < image.length; row++) {
+            for (int col = 0; col < image[0].length; col++)
+                flattenedImage[row * image[0].length + col] = image[row][col];
+        }
+
         return flattenedImage;
     }
 }
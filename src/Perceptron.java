@@ -1,8 +1,10 @@
+import java.util.*;
+
 /**
  * Models a two hidden-layer perceptron algorithm with any number of nodes using the backpropagation algorithm.
  *
  * @author Brandon Park
- * @version 8/28/22
+ * @version 10/19/26
  */
 public class Perceptron {
     public double startTime;
@@ -10,6 +12,19 @@ public class Perceptron {
     double Theta_i, Theta_j, Theta_k, Omega_j, Omega_k, Psi_j, Psi_k;
 
     public double[][][] W;
+
+    /*
+     * The sparse storage of the input layer's weights once it has been pruned. While training, W[0] is only brought up
+     * to date with S when the weights are saved or training ends.
+     */
+    public SparseLayer S;
+    public double pruneSparsity;
+    public int pruneInterval;
+    public int pruneSteps;
+
+    public ConvLayer conv;
+    public String convWeightsFilePath;
+    double[] omegaInput;
     public double[][] a = new double[4][];
     public double[][] Theta = new double[4][];
 
@@ -21,6 +36,30 @@ public class Perceptron {
 
     boolean printDetailed;
 
+    /*
+     * Whether the output layer is a softmax trained on cross-entropy rather than sigmoids trained on squared error.
+     * correct counts the classifications that matched their expected class in runWithOutput.
+     */
+    public boolean softmax;
+    public int correct;
+
+    /*
+     * The generator used to shuffle the order of the training sets each training cycle, or null to keep their order.
+     */
+    public RandomGenerator shuffler;
+
+    /*
+     * The producer of augmented training images, if any. Each training cycle trains on augmentationRate augmented
+     * images per training set after the training sets themselves, skipping any that are not ready in time.
+     */
+    public Augmenter augmenter;
+    public double augmentationRate;
+    double augmentCredit;
+    int augmentHits;
+    int augmentMisses;
+
+    int[] order;
+
     /**
      * Constructs a new Perceptron object and initializes the architecture.
      *
@@ -43,7 +82,7 @@ public class Perceptron {
      * @param input the input value.
      * @return returns the sigmoid of input as a double.
      */
-    private double sigmoid(double input) {
+    static double sigmoid(double input) {
         return 1.0 / (1.0 + Math.exp(-input));
     }
 
@@ -58,36 +97,134 @@ public class Perceptron {
         return f * (1.0 - f);
     }
 
+    /**
+     * Replaces an array of values with its softmax (i.e. e^value/sum of e^values), shifting by the largest value
+     * first to avoid overflow.
+     *
+     * @param values the values to normalize.
+     */
+    static void softmax(double[] values) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < values.length; i++)
+            max = Math.max(max, values[i]);
+
+        double sum = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(values[i] - max);
+            sum += values[i];
+        }
+
+        for (int i = 0; i < values.length; i++)
+            values[i] /= sum;
+    }
+
+    /**
+     * Finds the index of the largest value in an array.
+     *
+     * @param values the array of values.
+     * @return returns the index of the largest value.
+     */
+    public static int argmax(double[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[index])
+                index = i;
+        }
+        return index;
+    }
+
+    /**
+     * Calculates the weighted sum of the inputs feeding into a node of the first hidden layer, skipping pruned
+     * connections if the input layer is sparse.
+     *
+     * @param k the index of the node in the first hidden layer.
+     * @return returns the weighted sum of the inputs as a double.
+     */
+    private double inputTheta(int k) {
+        double theta = 0.0;
+
+        if (S == null) {
+            for (int m = 0; m < nodes[0]; m++)
+                theta += a[0][m] * W[0][m][k];
+        } else {
+            for (int p = S.start[k]; p < S.start[k + 1]; p++)
+                theta += a[0][S.index[p]] * S.values[p];
+        }
+
+        return theta;
+    }
+
+    /**
+     * Updates the weights feeding into a node of the first hidden layer, skipping pruned connections if the input
+     * layer is sparse. If there is a convolution stage, the node's contribution to the omega of each input is
+     * accumulated before the weights change.
+     *
+     * @param k      the index of the node in the first hidden layer.
+     * @param lambda the learning rate applied to each weight change.
+     * @param psi    the psi of the node.
+     */
+    private void updateInputWeights(int k, double lambda, double psi) {
+        if (S == null) {
+            for (int m = 0; m < nodes[0]; m++) {
+                if (conv != null)
+                    omegaInput[m] += psi * W[0][m][k];
+                W[0][m][k] += lambda * a[0][m] * psi;
+            }
+        } else {
+            for (int p = S.start[k]; p < S.start[k + 1]; p++) {
+                if (conv != null)
+                    omegaInput[S.index[p]] += psi * S.values[p];
+                S.values[p] += lambda * a[0][S.index[p]] * psi;
+            }
+        }
+    }
+
+    /**
+     * Prunes the input layer's weights with the smallest magnitudes until a given fraction of them are removed, after
+     * which the input layer is stored sparsely.
+     *
+     * @param sparsity the fraction of the input layer's weights to prune, between 0 and 1.
+     */
+    public void prune(double sparsity) {
+        if (S != null)
+            S.toDense(W[0]);
+
+        S = new SparseLayer(W[0], SparseLayer.magnitudeThreshold(W[0], sparsity));
+    }
+
     /**
      * Runs the perceptron, propagating each activation result forward into the next layer.
      *
      * @param inputSet the input values of the testing set.
      */
     public void run(double[] inputSet) {
-        a[0] = inputSet;
+        a[0] = conv == null ? inputSet : conv.forward(inputSet);
 
-        for (int i = 0; i < nodes[3]; i++) {
-            Theta_i = 0.0;
+        for (int k = 0; k < nodes[1]; k++) {
+            Theta_k = inputTheta(k);
+            a[1][k] = sigmoid(Theta_k);
+        }
 
-            for (int j = 0; j < nodes[2]; j++) {
-                Theta_j = 0.0;
+        for (int j = 0; j < nodes[2]; j++) {
+            Theta_j = 0.0;
 
-                for (int k = 0; k < nodes[1]; k++) {
-                    Theta_k = 0.0;
+            for (int k = 0; k < nodes[1]; k++)
+                Theta_j += a[1][k] * W[1][k][j];
 
-                    for (int m = 0; m < nodes[0]; m++)
-                        Theta_k += a[0][m] * W[0][m][k];
+            a[2][j] = sigmoid(Theta_j);
+        }
 
-                    a[1][k] = sigmoid(Theta_k);
-                    Theta_j += a[1][k] * W[1][k][j];
-                }
+        for (int i = 0; i < nodes[3]; i++) {
+            Theta_i = 0.0;
 
-                a[2][j] = sigmoid(Theta_j);
+            for (int j = 0; j < nodes[2]; j++)
                 Theta_i += a[2][j] * W[2][j][i];
-            }
 
-            a[3][i] = sigmoid(Theta_i);
+            a[3][i] = softmax ? Theta_i : sigmoid(Theta_i);
         }
+
+        if (softmax)
+            softmax(a[3]);
     }
 
     /**
@@ -119,23 +256,73 @@ public class Perceptron {
      */
     public void runWithOutput(double[] inputSet, double[] outputSet) {
         run(inputSet);
+        if (printResults(a[0], a[3], outputSet, printDetailed, softmax))
+            correct++;
+    }
 
+    /**
+     * Outputs the results and expected values of a run to console, along with its inputs if printDetailed. If the
+     * output layer is a softmax, the predicted class is also output.
+     *
+     * @param inputs        the values of the input layer.
+     * @param results       the values of the output layer.
+     * @param outputSet     the expected output values.
+     * @param printDetailed whether the inputs should be output.
+     * @param softmax       whether the output layer is a softmax.
+     * @return returns whether the predicted class matched the expected class, or false if the output layer is not a
+     * softmax.
+     */
+    static boolean printResults(double[] inputs, double[] results, double[] outputSet, boolean printDetailed,
+                                boolean softmax) {
         System.out.println();
         if (printDetailed) {
             System.out.print("Inputs:");
-            for (int m = 0; m < nodes[0]; m++)
-                System.out.print(" " + a[0][m]);
+            for (int m = 0; m < inputs.length; m++)
+                System.out.print(" " + inputs[m]);
             System.out.print(", ");
         }
 
         System.out.print("F:");
-        for (int i = 0; i < nodes[3]; i++)
-            System.out.print(" " + a[3][i]);
+        for (int i = 0; i < results.length; i++)
+            System.out.print(" " + results[i]);
         System.out.print(", ");
 
         System.out.print("T:");
-        for (int i = 0; i < nodes[3]; i++)
+        for (int i = 0; i < results.length; i++)
             System.out.print(" " + outputSet[i]);
+
+        if (!softmax)
+            return false;
+
+        int predicted = argmax(results);
+        int expected = argmax(outputSet);
+        System.out.print(", Class: " + predicted + " (expected " + expected + ")");
+        return predicted == expected;
+    }
+
+    /**
+     * Outputs the fraction of classifications counted by runWithOutput that matched their expected class, then resets
+     * the count.
+     *
+     * @param sets the number of sets that were run.
+     */
+    public void printAccuracy(int sets) {
+        if (!softmax)
+            return;
+
+        printAccuracy(correct, sets);
+        correct = 0;
+    }
+
+    /**
+     * Outputs the fraction of classifications that matched their expected class.
+     *
+     * @param correct the number of classifications that matched their expected class.
+     * @param sets    the number of sets that were run.
+     */
+    static void printAccuracy(int correct, int sets) {
+        System.out.println();
+        System.out.println("Accuracy: " + correct + "/" + sets + " (" + 100.0 * correct / sets + "%).");
     }
 
     /**
@@ -145,31 +332,154 @@ public class Perceptron {
      * @param outputSet the output values of the testing set.
      */
     public void runDetailed(double[] inputSet, double[] outputSet) {
-        a[0] = inputSet;
+        a[0] = conv == null ? inputSet : conv.forward(inputSet);
+
+        for (int k = 0; k < nodes[1]; k++) {
+            Theta[1][k] = inputTheta(k);
+            a[1][k] = sigmoid(Theta[1][k]);
+        }
+
+        for (int j = 0; j < nodes[2]; j++) {
+            Theta[2][j] = 0.0;
+
+            for (int k = 0; k < nodes[1]; k++)
+                Theta[2][j] += a[1][k] * W[1][k][j];
+
+            a[2][j] = sigmoid(Theta[2][j]);
+        }
 
         for (int i = 0; i < nodes[3]; i++) {
             Theta[3][i] = 0.0;
 
-            for (int j = 0; j < nodes[2]; j++) {
-                Theta[2][j] = 0.0;
+            for (int j = 0; j < nodes[2]; j++)
+                Theta[3][i] += a[2][j] * W[2][j][i];
 
-                for (int k = 0; k < nodes[1]; k++) {
-                    Theta[1][k] = 0.0;
+            a[3][i] = softmax ? Theta[3][i] : sigmoid(Theta[3][i]);
+        }
 
-                    for (int m = 0; m < nodes[0]; m++)
-                        Theta[1][k] += a[0][m] * W[0][m][k];
+        if (softmax) {
+            softmax(a[3]);
 
-                    a[1][k] = sigmoid(Theta[1][k]);
-                    Theta[2][j] += a[1][k] * W[1][k][j];
+            for (int i = 0; i < nodes[3]; i++)
+                psi[i] = outputSet[i] - a[3][i];
+        } else {
+            for (int i = 0; i < nodes[3]; i++)
+                psi[i] = (outputSet[i] - a[3][i]) * fPrime(Theta[3][i]);
+        }
+
+        totalError += error(a[3], outputSet, softmax);
+    }
+
+    /**
+     * Calculates the error of a single run, which is the cross-entropy if the output layer is a softmax and half the
+     * squared error otherwise.
+     *
+     * @param results   the values of the output layer.
+     * @param outputSet the expected output values.
+     * @param softmax   whether the output layer is a softmax.
+     * @return returns the error of the run.
+     */
+    static double error(double[] results, double[] outputSet, boolean softmax) {
+        double error = 0.0;
+
+        for (int i = 0; i < results.length; i++) {
+            if (softmax) {
+                if (outputSet[i] > 0.0)
+                    error -= outputSet[i] * Math.log(Math.max(results[i], Double.MIN_NORMAL));
+            } else {
+                error += 0.5 * (outputSet[i] - results[i]) * (outputSet[i] - results[i]);
+            }
+        }
+
+        return error;
+    }
+
+    /**
+     * Backpropagates the error of the most recent call to runDetailed, updating every weight.
+     *
+     * @param lambda the learning rate applied to each weight change.
+     */
+    private void backpropagate(double lambda) {
+        if (conv != null)
+            Arrays.fill(omegaInput, 0.0);
+
+        for (int k = 0; k < nodes[1]; k++) {
+            Omega_k = 0.0;
+
+            for (int j = 0; j < nodes[2]; j++) {
+                Omega_j = 0.0;
+
+                for (int i = 0; i < nodes[3]; i++) {
+                    Omega_j += psi[i] * W[2][j][i];
+                    W[2][j][i] += lambda * a[2][j] * psi[i];
                 }
 
-                a[2][j] = sigmoid(Theta[2][j]);
-                Theta[3][i] += a[2][j] * W[2][j][i];
+                Psi_j = Omega_j * fPrime(Theta[2][j]);
+                Omega_k += Psi_j * W[1][k][j];
+                W[1][k][j] += lambda * a[1][k] * Psi_j;
             }
 
-            a[3][i] = sigmoid(Theta[3][i]);
-            totalError += 0.5 * (outputSet[i] - a[3][i]) * (outputSet[i] - a[3][i]);
-            psi[i] = (outputSet[i] - a[3][i]) * fPrime(Theta[3][i]);
+            Psi_k = Omega_k * fPrime(Theta[1][k]);
+            updateInputWeights(k, lambda, Psi_k);
+        }
+
+        if (conv != null)
+            conv.backpropagate(omegaInput, lambda);
+    }
+
+    /**
+     * Allocates the values used in backpropagation and resets the training order and augmentation counts.
+     *
+     * @param sets the number of training sets.
+     */
+    public void initTraining(int sets) {
+        for (int alpha = 0; alpha < 4; alpha++)
+            Theta[alpha] = new double[nodes[alpha]];
+
+        psi = new double[nodes[3]];
+        omegaInput = new double[nodes[0]];
+
+        order = new int[sets];
+        for (int t = 0; t < order.length; t++)
+            order[t] = t;
+
+        augmentCredit = 0.0;
+        augmentHits = 0;
+        augmentMisses = 0;
+    }
+
+    /**
+     * Runs a single training cycle, backpropagating through every training set once followed by any augmented images.
+     * initTraining must be called before the first cycle.
+     *
+     * @param lambda      the learning rate applied to each weight change.
+     * @param trainInput  the input values of the training set.
+     * @param trainOutput the output values of the training set.
+     */
+    public void trainCycle(double lambda, double[][] trainInput, double[][] trainOutput) {
+        totalError = 0.0;
+        if (shuffler != null)
+            shuffler.shuffle(order);
+
+        for (int t : order) {
+            runDetailed(trainInput[t], trainOutput[t]);
+            backpropagate(lambda);
+        }
+
+        if (augmenter != null) {
+            double error = totalError;
+            for (augmentCredit += augmentationRate * trainInput.length; augmentCredit >= 1.0; augmentCredit--) {
+                double[][] augmented = augmenter.poll();
+                if (augmented == null) {
+                    augmentMisses++;
+                    continue;
+                }
+
+                runDetailed(augmented[0], augmented[1]);
+                backpropagate(lambda);
+                augmentHits++;
+            }
+            totalError = error;
         }
     }
 
@@ -177,6 +487,9 @@ public class Perceptron {
      * Trains the perceptron, using the gradient descent algorithm with backpropagation to update the weights until one of the following conditions is met:
      * 1. The max number of iterations is reached.
      * 2. The total error of the training sets is below the threshold.
+     * If shuffler is set, the training sets are visited in a new random order each training cycle. If pruneSparsity is
+     * positive, the input layer is also pruned by magnitude every pruneInterval training cycles, reaching pruneSparsity
+     * after pruneSteps prunings, or only once training ends if pruneSteps is 0. Augmented images do not count towards the total error.
      *
      * @param maxIterations    the max number of training cycles.
      * @param lambda           the learning rate applied to each weight change.
@@ -190,39 +503,18 @@ public class Perceptron {
         startTime = System.currentTimeMillis();
         boolean done = false;
         int iteration = 1;
+        int pruneStep = 0;
 
-        for (int alpha = 0; alpha < 4; alpha++)
-            Theta[alpha] = new double[nodes[alpha]];
-
-        psi = new double[nodes[3]];
+        initTraining(trainInput.length);
 
         while (!done) {
-            totalError = 0.0;
-
-            for (int t = 0; t < trainInput.length; t++) {
-                runDetailed(trainInput[t], trainOutput[t]);
-
-                for (int k = 0; k < nodes[1]; k++) {
-                    Omega_k = 0.0;
-
-                    for (int j = 0; j < nodes[2]; j++) {
-                        Omega_j = 0.0;
+            trainCycle(lambda, trainInput, trainOutput);
 
-                        for (int i = 0; i < nodes[3]; i++) {
-                            Omega_j += psi[i] * W[2][j][i];
-                            W[2][j][i] += lambda * a[2][j] * psi[i];
-                        }
-
-                        Psi_j = Omega_j * fPrime(Theta[2][j]);
-                        Omega_k += Psi_j * W[1][k][j];
-                        W[1][k][j] += lambda * a[1][k] * Psi_j;
-                    }
-
-                    Psi_k = Omega_k * fPrime(Theta[1][k]);
-
-                    for (int m = 0; m < nodes[0]; m++)
-                        W[0][m][k] += lambda * a[0][m] * Psi_k;
-                }
+            if (pruneSparsity > 0.0 && pruneStep < pruneSteps && iteration % pruneInterval == 0) {
+                pruneStep++;
+                prune(pruneSparsity * pruneStep / pruneSteps);
+                if (printDetailed)
+                    System.out.println("Pruned input layer to " + S.sparsity() + " sparsity.");
             }
 
             if (printDetailed)
@@ -241,13 +533,34 @@ public class Perceptron {
                 done = true;
             } else if (autosaveInterval > 0 && iteration % autosaveInterval == 0) {
                 System.out.println("Autosaving... (at " + iteration + " total iterations with autosave interval of " + autosaveInterval + "). Currently at " + totalError + " total error.");
+                if (S != null)
+                    S.toDense(W[0]);
                 WeightsHandler.writeWeights(W, weightsFilePath);
+                if (conv != null)
+                    WeightsHandler.writeConvWeights(conv, convWeightsFilePath);
             }
         }
 
+        if (pruneSparsity > 0.0 && pruneSteps == 0) {
+            System.out.println("Pruning input layer to " + pruneSparsity + " sparsity after training.");
+            prune(pruneSparsity);
+        } else if (pruneSparsity > 0.0 && pruneStep < pruneSteps) {
+            System.out.println("Training ended before pruning finished. Pruning input layer to " + pruneSparsity + " sparsity without further training.");
+            prune(pruneSparsity);
+        }
+
+        if (S != null) {
+            S.toDense(W[0]);
+            System.out.println("Input layer sparsity: " + S.sparsity() + ".");
+        }
+
+        if (augmenter != null)
+            System.out.println("Trained on " + augmentHits + " augmented images (" + augmentMisses + " were not ready in time).");
+
         System.out.println((System.currentTimeMillis() - startTime) + "ms elapsed.");
 
         for (int t = 0; t < trainInput.length; t++)
             runWithOutput(trainInput[t], trainOutput[t]);
+        printAccuracy(trainInput.length);
     }
 }
@@ -10,12 +10,13 @@ import java.io.*;
  * Configures and executes the perceptron process.
  *
  * @author Brandon Park
- * @version 8/31/22
+ * @version 10/19/26
  */
 public class PerceptronRunner {
     static boolean train = false;
     static int[] nodes;
     static boolean printDetailed;
+    static boolean classification;
 
     static final String DEFAULT_CONFIG_PATH = "src/defaults/defaultConfig.json";
     static JSONObject defaultConfig;
@@ -25,6 +26,7 @@ public class PerceptronRunner {
 
     static double[][] inputSets;
     static double[][] outputSets;
+    static int[] imageSize;
 
     static String weightsPath;
     static String setsPath;
@@ -38,6 +40,38 @@ public class PerceptronRunner {
     static boolean saveWeights;
     static String savedWeightsPath;
     static int autosaveInterval;
+    static long seed;
+    static String weightInit;
+    static int threads;
+    static boolean shuffle;
+    static double augmentationRate;
+    static int augmentationWorkers;
+    static int augmentationBufferSize;
+    static int maxShift;
+    static boolean flipHorizontal;
+    static double noiseDeviation;
+    static double thresholdJitter;
+    static String distributedRole;
+    static String coordinatorHost;
+    static int coordinatorPort;
+    static int distributedWorkers;
+    static int syncInterval;
+    static double pruneSparsity;
+    static int pruneInterval;
+    static int pruneSteps;
+
+    static ConvLayer conv;
+    static int convFilters;
+    static int convKernelSize;
+    static int poolSize;
+    static String convWeightsPath;
+    static String savedConvWeightsPath;
+
+    static boolean quantize;
+    static boolean useQuantizedWeights;
+    static String quantizedWeightsPath;
+    static String calibrationSetsPath;
+    static int benchmarkRuns;
 
 
     /**
@@ -90,13 +124,52 @@ public class PerceptronRunner {
     }
 
     /**
-     * Configures the network according to config.
+     * Configures the network according to config, reading the sets first so that a convolution stage can be sized to
+     * their images.
      */
     private static void configNetwork() {
         train = (boolean) getConfig("train");
         nodes = ((JSONArray) getConfig("nodes")).stream().mapToInt(i -> (int) (long) i).toArray();
         printDetailed = (boolean) getConfig("printDetailed");
+        classification = (boolean) getConfig("classification");
+        setsPath = (String) getConfig("setsPath");
+
+        if (classification && nodes[3] < 2) {
+            System.out.println("Classification requires at least 2 output nodes. Aborting process.");
+            System.exit(1);
+        }
+        if (classification && (setsPath.equals("TRAINING_IMAGES") || setsPath.equals("TESTING_IMAGES")) &&
+                nodes[3] != SetsHandler.FINGER_COUNTS) {
+            System.out.println("Classifying image sets requires " + SetsHandler.FINGER_COUNTS + " output nodes. " +
+                    "Aborting process.");
+            System.exit(1);
+        }
+
+        convFilters = (int) (long) getConfig("convFilters");
+        if (convFilters < 0) {
+            System.out.println("Number of convolution filters must be at least 0. Aborting process.");
+            System.exit(1);
+        }
+        if (convFilters > 0) {
+            convKernelSize = (int) (long) getConfig("convKernelSize");
+            poolSize = (int) (long) getConfig("poolSize");
+            if (convKernelSize < 1 || poolSize < 1) {
+                System.out.println("Convolution kernel size and pool size must be at least 1. Aborting process.");
+                System.exit(1);
+            }
+        }
+
+        Object[] sets = SetsHandler.readSets(nodes[0], nodes[3], setsPath, classification);
+
+        inputSets = (double[][]) sets[0];
+        outputSets = (double[][]) sets[1];
+        imageSize = (int[]) sets[2];
+
+        configConv();
+
         perceptron = new Perceptron(nodes, printDetailed);
+        perceptron.softmax = classification;
+        perceptron.conv = conv;
     }
 
     /**
@@ -105,26 +178,124 @@ public class PerceptronRunner {
      * @param operation the operation being executed on the network, must be "run" or "train".
      */
     private static void configure(String operation) {
-        setsPath = (String) getConfig("setsPath");
+        pruneSparsity = (double) getConfig("pruneSparsity");
+        if (pruneSparsity < 0.0 || pruneSparsity > 1.0) {
+            System.out.println("Pruning sparsity must be between 0 and 1. Aborting process.");
+            System.exit(1);
+        }
         if (operation.equals("run")) {
             weightsPath = (String) getConfig("weightsPath");
+            if (convFilters > 0)
+                convWeightsPath = (String) getConfig("convWeightsPath");
+
+            quantize = (boolean) getConfig("quantize");
+            useQuantizedWeights = (boolean) getConfig("useQuantizedWeights");
+            if (quantize || useQuantizedWeights)
+                quantizedWeightsPath = (String) getConfig("quantizedWeightsPath");
+            if (quantize) {
+                calibrationSetsPath = (String) getConfig("calibrationSetsPath");
+                benchmarkRuns = (int) (long) getConfig("benchmarkRuns");
+            }
         } else if (operation.equals("train")) {
             useTrainingWeights = (boolean) getConfig("useTrainingWeights");
-            if (useTrainingWeights)
+            if (useTrainingWeights) {
                 weightsPath = (String) getConfig("weightsPath");
+                if (convFilters > 0)
+                    convWeightsPath = (String) getConfig("convWeightsPath");
+            }
 
             lambda = (double) getConfig("lambda");
             maxIterations = (int) (long) getConfig("maxIterations");
             errorThreshold = (double) getConfig("errorThreshold");
             minRandom = (double) getConfig("minRandom");
             maxRandom = (double) getConfig("maxRandom");
+            seed = (long) getConfig("seed");
+            if (seed < 0)
+                seed = System.nanoTime() & Long.MAX_VALUE;
+            weightInit = (String) getConfig("weightInit");
+            threads = (int) (long) getConfig("threads");
+            if (threads <= 0)
+                threads = Runtime.getRuntime().availableProcessors();
+            shuffle = (boolean) getConfig("shuffle");
+
+            augmentationRate = (double) getConfig("augmentationRate");
+            if (augmentationRate > 0.0) {
+                augmentationWorkers = (int) (long) getConfig("augmentationWorkers");
+                augmentationBufferSize = (int) (long) getConfig("augmentationBufferSize");
+                maxShift = (int) (long) getConfig("maxShift");
+                flipHorizontal = (boolean) getConfig("flipHorizontal");
+                noiseDeviation = (double) getConfig("noiseDeviation");
+                thresholdJitter = (double) getConfig("thresholdJitter");
+
+                if (augmentationWorkers < 1 || augmentationBufferSize < 1) {
+                    System.out.println("Augmentation requires at least 1 worker and a buffer size of at least 1. " +
+                            "Aborting process.");
+                    System.exit(1);
+                }
+                if (maxShift < 0 || noiseDeviation < 0.0) {
+                    System.out.println("Augmentation shift and noise deviation must be at least 0. Aborting process.");
+                    System.exit(1);
+                }
+            }
+
+            distributedRole = (String) getConfig("distributedRole");
+            if (!distributedRole.equals("none")) {
+                if (!distributedRole.equals("coordinator") && !distributedRole.equals("worker")) {
+                    System.out.println("Unknown distributed role " + distributedRole + ". Aborting process.");
+                    System.exit(1);
+                }
+                if (pruneSparsity > 0.0 || augmentationRate > 0.0) {
+                    System.out.println("Pruning and augmentation are not supported in distributed training. Aborting process.");
+                    System.exit(1);
+                }
+
+                coordinatorHost = (String) getConfig("coordinatorHost");
+                coordinatorPort = (int) (long) getConfig("coordinatorPort");
+                distributedWorkers = (int) (long) getConfig("distributedWorkers");
+                syncInterval = (int) (long) getConfig("syncInterval");
+
+                if (distributedWorkers < 1 || syncInterval < 1) {
+                    System.out.println("Distributed training requires at least 1 worker and a sync interval of at " +
+                            "least 1. Aborting process.");
+                    System.exit(1);
+                }
+            }
 
             saveWeights = (boolean) getConfig("saveWeights");
             if (saveWeights) {
                 savedWeightsPath = (String) getConfig("savedWeightsPath");
                 autosaveInterval = (int) (long) getConfig("autosaveInterval");
+                if (convFilters > 0)
+                    savedConvWeightsPath = (String) getConfig("savedConvWeightsPath");
             }
+
+            if (pruneSparsity > 0.0) {
+                pruneInterval = (int) (long) getConfig("pruneInterval");
+                pruneSteps = (int) (long) getConfig("pruneSteps");
+                if (pruneInterval < 1 || pruneSteps < 0) {
+                    System.out.println("Pruning interval must be at least 1 and pruning steps must be at least 0. " +
+                            "Aborting process.");
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a convolution stage if configured, using the dimensions of the images in the loaded sets and replacing
+     * the number of input nodes with the number of values the stage produces.
+     */
+    private static void configConv() {
+        if (convFilters == 0)
+            return;
+
+        if (imageSize == null) {
+            System.out.println("A convolution stage requires image sets. Aborting process.");
+            System.exit(1);
         }
+
+        conv = new ConvLayer(imageSize[0], imageSize[1], convFilters, convKernelSize, poolSize);
+        nodes[0] = conv.outputSize();
     }
 
     /**
@@ -134,15 +305,100 @@ public class PerceptronRunner {
         System.out.println("Running network.");
         configure("run");
 
-        perceptron.W = WeightsHandler.readWeights(nodes, weightsPath);
+        if (conv != null)
+            WeightsHandler.readConvWeights(conv, convWeightsPath);
+
+        if (useQuantizedWeights) {
+            QuantizedPerceptron quantized = WeightsHandler.readQuantizedWeights(nodes, printDetailed,
+                    quantizedWeightsPath);
+            quantized.conv = conv;
+            quantized.softmax = classification;
+
+            for (int t = 0; t < inputSets.length; t++)
+                quantized.runWithOutput(inputSets[t], outputSets[t]);
+            quantized.printAccuracy(inputSets.length);
+            return;
+        }
 
-        Object[] testingSets = SetsHandler.readSets(nodes[0], nodes[3], setsPath);
+        perceptron.W = WeightsHandler.readWeights(nodes, weightsPath);
+        if (pruneSparsity > 0.0)
+            perceptron.S = new SparseLayer(perceptron.W[0], 0.0);
 
-        inputSets = (double[][]) testingSets[0];
-        outputSets = (double[][]) testingSets[1];
+        if (quantize) {
+            quantizeNetwork();
+            return;
+        }
 
         for (int t = 0; t < inputSets.length; t++)
             perceptron.runWithOutput(inputSets[t], outputSets[t]);
+        perceptron.printAccuracy(inputSets.length);
+    }
+
+    /**
+     * Quantizes the network's weights to int8, calibrating on the calibration sets, saves the quantized weights, and
+     * compares the error and throughput of the quantized network against the original network on the testing sets.
+     * The error is measured with the same loss the network trains on. Both networks are run benchmarkRuns times over
+     * the testing sets untimed before timing so that neither is measured before the JIT compiler has warmed up.
+     */
+    private static void quantizeNetwork() {
+        System.out.println("Quantizing network using calibration sets at " + calibrationSetsPath + ".");
+
+        double[][] calibrationInputs = (double[][]) SetsHandler.readSets(nodes[0], nodes[3], calibrationSetsPath,
+                classification)[0];
+        QuantizedPerceptron quantized = QuantizedPerceptron.quantize(perceptron, calibrationInputs);
+        WeightsHandler.writeQuantizedWeights(quantized, quantizedWeightsPath);
+
+        double error = 0.0;
+        double quantizedError = 0.0;
+        double maxDifference = 0.0;
+        int correct = 0;
+
+        for (int t = 0; t < inputSets.length; t++) {
+            perceptron.run(inputSets[t]);
+            if (Perceptron.argmax(perceptron.a[3]) == Perceptron.argmax(outputSets[t]))
+                correct++;
+            quantized.runWithOutput(inputSets[t], outputSets[t]);
+
+            error += Perceptron.error(perceptron.a[3], outputSets[t], classification);
+            quantizedError += Perceptron.error(quantized.a[3], outputSets[t], classification);
+            for (int i = 0; i < nodes[3]; i++)
+                maxDifference = Math.max(maxDifference, Math.abs(perceptron.a[3][i] - quantized.a[3][i]));
+        }
+
+        for (int r = 0; r < benchmarkRuns; r++) {
+            for (int t = 0; t < inputSets.length; t++) {
+                perceptron.run(inputSets[t]);
+                quantized.run(inputSets[t]);
+            }
+        }
+
+        double startTime = System.nanoTime();
+        for (int r = 0; r < benchmarkRuns; r++) {
+            for (int t = 0; t < inputSets.length; t++)
+                perceptron.run(inputSets[t]);
+        }
+        double elapsed = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int r = 0; r < benchmarkRuns; r++) {
+            for (int t = 0; t < inputSets.length; t++)
+                quantized.run(inputSets[t]);
+        }
+        double quantizedElapsed = System.nanoTime() - startTime;
+
+        int totalRuns = benchmarkRuns * inputSets.length;
+
+        System.out.println();
+        System.out.println();
+        System.out.println("Quantized weights saved to " + quantizedWeightsPath + ".");
+        System.out.println(" - Total " + (classification ? "cross-entropy" : "squared") + " error: " + error + " (double), " + quantizedError + " (int8), delta " +
+                (quantizedError - error));
+        System.out.println(" - Max output difference: " + maxDifference);
+        if (classification)
+            System.out.println(" - Accuracy: " + correct + "/" + inputSets.length + " (double), " + quantized.correct +
+                    "/" + inputSets.length + " (int8), delta " + (quantized.correct - correct));
+        System.out.println(" - Throughput: " + totalRuns / (elapsed / 1e9) + " runs/s (double), " +
+                totalRuns / (quantizedElapsed / 1e9) + " runs/s (int8)");
     }
 
     /**
@@ -152,24 +408,83 @@ public class PerceptronRunner {
         System.out.println("Training network.");
         configure("train");
 
-        System.out.println(" - Random weight range: " + minRandom + " to " + maxRandom);
+        System.out.println(" - Weight initialization: " + weightInit + (weightInit.equals("uniform") ? " from " +
+                minRandom + " to " + maxRandom : "") + " with seed " + seed);
         System.out.println(" - Max iterations: " + maxIterations);
         System.out.println(" - Lambda: " + lambda);
 
+        RandomGenerator generator = new RandomGenerator(seed);
+        RandomGenerator weightsGenerator = generator.split();
+        RandomGenerator convGenerator = generator.split();
+        if (shuffle)
+            perceptron.shuffler = generator.split();
+
+        if (augmentationRate > 0.0) {
+            if (imageSize == null) {
+                System.out.println("Augmentation requires image sets. Aborting process.");
+                System.exit(1);
+            }
+
+            System.out.println(" - Augmentation: " + augmentationRate + " augmented images per training set from " +
+                    augmentationWorkers + " workers");
+
+            perceptron.augmenter = new Augmenter(inputSets, outputSets, imageSize[0], imageSize[1], maxShift,
+                    flipHorizontal, noiseDeviation, thresholdJitter, augmentationWorkers, augmentationBufferSize,
+                    generator.split());
+            perceptron.augmentationRate = augmentationRate;
+        }
+
         if (useTrainingWeights)
             perceptron.W = WeightsHandler.readWeights(nodes, weightsPath);
         else
-            perceptron.W = WeightsHandler.randomizeWeights(nodes, minRandom, maxRandom);
+            perceptron.W = WeightsHandler.randomizeWeights(nodes, weightInit, minRandom, maxRandom, weightsGenerator,
+                    threads);
+
+        if (conv != null) {
+            if (useTrainingWeights)
+                WeightsHandler.readConvWeights(conv, convWeightsPath);
+            else
+                conv.randomize(weightInit, minRandom, maxRandom, convGenerator);
+            perceptron.convWeightsFilePath = savedConvWeightsPath;
+        }
 
-        Object[] trainingSets = SetsHandler.readSets(nodes[0], nodes[3], setsPath);
+        if (pruneSparsity > 0.0) {
+            System.out.println(" - Pruning: " + pruneSparsity + " sparsity in " + pruneSteps + " steps every " +
+                    pruneInterval + " iterations");
 
-        inputSets = (double[][]) trainingSets[0];
-        outputSets = (double[][]) trainingSets[1];
+            perceptron.pruneSparsity = pruneSparsity;
+            perceptron.pruneInterval = pruneInterval;
+            perceptron.pruneSteps = pruneSteps;
+            if (useTrainingWeights)
+                perceptron.S = new SparseLayer(perceptron.W[0], 0.0);
+        }
+
+        if (distributedRole.equals("worker")) {
+            DistributedTrainer.work(perceptron, coordinatorHost, coordinatorPort, syncInterval, lambda, inputSets,
+                    outputSets);
+            return;
+        }
+
+        if (distributedRole.equals("coordinator")) {
+            System.out.println(" - Distributed: averaging " + distributedWorkers + " workers every " + syncInterval +
+                    " iterations");
+            DistributedTrainer.coordinate(perceptron, coordinatorPort, distributedWorkers, maxIterations,
+                    syncInterval, errorThreshold, inputSets, outputSets);
+        } else {
+            if (perceptron.augmenter != null)
+                perceptron.augmenter.start();
 
-        perceptron.train(maxIterations, lambda, errorThreshold, inputSets, outputSets, savedWeightsPath, autosaveInterval);
+            perceptron.train(maxIterations, lambda, errorThreshold, inputSets, outputSets, savedWeightsPath, autosaveInterval);
 
-        if (saveWeights)
+            if (perceptron.augmenter != null)
+                perceptron.augmenter.stop();
+        }
+
+        if (saveWeights) {
             WeightsHandler.writeWeights(perceptron.W, savedWeightsPath);
+            if (conv != null)
+                WeightsHandler.writeConvWeights(conv, savedConvWeightsPath);
+        }
     }
 
     /**
@@ -193,6 +508,11 @@ public class PerceptronRunner {
         }
         System.out.println();
 
+        if (conv != null)
+            System.out.println(" - Convolution: " + convFilters + " " + convKernelSize + "x" + convKernelSize +
+                    " filters with " + poolSize + "x" + poolSize + " pooling on " + conv.width + "x" + conv.height +
+                    " images");
+
         System.out.println();
         if (train) trainNetwork();
         else runNetwork();
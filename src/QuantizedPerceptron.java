@@ -0,0 +1,168 @@
+/**
+ * Models an int8 post-training quantization of a two hidden-layer perceptron. Weights are quantized symmetrically with
+ * one scale per output node, activations are quantized with one scale per layer calibrated on a sample dataset, and
+ * every dot product is accumulated in integers before being rescaled into the sigmoid. A convolution stage, if any, is
+ * left unquantized.
+ *
+ * @author Brandon Park
+ * @version 10/19/26
+ */
+public class QuantizedPerceptron {
+    static final int QUANTIZED_MAX = 127;
+
+    public int[] nodes;
+
+    /*
+     * Q[n][b][a] is the quantized weight from node a of layer n to node b of layer n + 1. It is stored output-major so
+     * that each output node's weights are contiguous.
+     */
+    public byte[][][] Q;
+    public double[][] weightScales;
+    public double[] activationScales;
+
+    public ConvLayer conv;
+    public boolean softmax;
+    public int correct;
+
+    public double[][] a = new double[4][];
+    int[][] q = new int[3][];
+
+    boolean printDetailed;
+
+    /**
+     * Constructs a new QuantizedPerceptron object and initializes the architecture.
+     *
+     * @param nodes         the number of nodes in each layer of the network.
+     * @param printDetailed whether the network should have detailed output or not.
+     */
+    public QuantizedPerceptron(int[] nodes, boolean printDetailed) {
+        this.nodes = nodes;
+
+        for (int alpha = 0; alpha < 4; alpha++)
+            a[alpha] = new double[nodes[alpha]];
+        for (int alpha = 0; alpha < 3; alpha++)
+            q[alpha] = new int[nodes[alpha]];
+
+        Q = new byte[3][][];
+        weightScales = new double[3][];
+        activationScales = new double[3];
+        for (int n = 0; n < 3; n++) {
+            Q[n] = new byte[nodes[n + 1]][nodes[n]];
+            weightScales[n] = new double[nodes[n + 1]];
+        }
+
+        this.printDetailed = printDetailed;
+    }
+
+    /**
+     * Quantizes the weights of a trained perceptron, calibrating the activation scales by running the perceptron on a
+     * set of sample inputs and recording the largest activation reached in each layer.
+     *
+     * @param perceptron        the trained perceptron.
+     * @param calibrationInputs the sample inputs used for calibration.
+     * @return returns the quantized perceptron.
+     */
+    public static QuantizedPerceptron quantize(Perceptron perceptron, double[][] calibrationInputs) {
+        int[] nodes = perceptron.nodes;
+        QuantizedPerceptron quantized = new QuantizedPerceptron(nodes, perceptron.printDetailed);
+        quantized.conv = perceptron.conv;
+        quantized.softmax = perceptron.softmax;
+
+        for (int n = 0; n < 3; n++) {
+            for (int b = 0; b < nodes[n + 1]; b++) {
+                double max = 0.0;
+                for (int a = 0; a < nodes[n]; a++)
+                    max = Math.max(max, Math.abs(perceptron.W[n][a][b]));
+
+                double scale = max > 0.0 ? max / QUANTIZED_MAX : 1.0;
+                quantized.weightScales[n][b] = scale;
+
+                for (int a = 0; a < nodes[n]; a++)
+                    quantized.Q[n][b][a] = (byte) clamp(Math.round(perceptron.W[n][a][b] / scale));
+            }
+        }
+
+        double[] maxActivations = new double[3];
+        for (int t = 0; t < calibrationInputs.length; t++) {
+            perceptron.run(calibrationInputs[t]);
+
+            for (int alpha = 0; alpha < 3; alpha++) {
+                for (int m = 0; m < nodes[alpha]; m++)
+                    maxActivations[alpha] = Math.max(maxActivations[alpha], Math.abs(perceptron.a[alpha][m]));
+            }
+        }
+
+        for (int alpha = 0; alpha < 3; alpha++)
+            quantized.activationScales[alpha] = maxActivations[alpha] > 0.0 ? maxActivations[alpha] / QUANTIZED_MAX :
+                    1.0;
+
+        return quantized;
+    }
+
+    /**
+     * Clamps a rounded value into the symmetric int8 range.
+     *
+     * @param value the rounded value.
+     * @return returns value clamped between -QUANTIZED_MAX and QUANTIZED_MAX.
+     */
+    private static int clamp(long value) {
+        return (int) Math.max(-QUANTIZED_MAX, Math.min(QUANTIZED_MAX, value));
+    }
+
+    /**
+     * Runs the quantized perceptron layer by layer, quantizing each layer's activations before accumulating its dot
+     * products in integers.
+     *
+     * @param inputSet the input values of the testing set.
+     */
+    public void run(double[] inputSet) {
+        a[0] = conv == null ? inputSet : conv.forward(inputSet);
+
+        for (int n = 0; n < 3; n++) {
+            double activationScale = activationScales[n];
+            for (int m = 0; m < nodes[n]; m++)
+                q[n][m] = clamp(Math.round(a[n][m] / activationScale));
+
+            for (int b = 0; b < nodes[n + 1]; b++) {
+                byte[] weights = Q[n][b];
+                int accumulator = 0;
+
+                for (int m = 0; m < nodes[n]; m++)
+                    accumulator += q[n][m] * weights[m];
+
+                double theta = accumulator * activationScale * weightScales[n][b];
+                a[n + 1][b] = softmax && n == 2 ? theta : Perceptron.sigmoid(theta);
+            }
+        }
+
+        if (softmax)
+            Perceptron.softmax(a[3]);
+    }
+
+    /**
+     * Runs the quantized perceptron while outputting both the results and expected values to console. If the output
+     * layer is a softmax, the predicted class is also output and counted in correct if it matches the expected class.
+     *
+     * @param inputSet  the input values of the testing set.
+     * @param outputSet the output values of the testing set.
+     */
+    public void runWithOutput(double[] inputSet, double[] outputSet) {
+        run(inputSet);
+        if (Perceptron.printResults(a[0], a[3], outputSet, printDetailed, softmax))
+            correct++;
+    }
+
+    /**
+     * Outputs the fraction of classifications counted by runWithOutput that matched their expected class, then resets
+     * the count.
+     *
+     * @param sets the number of sets that were run.
+     */
+    public void printAccuracy(int sets) {
+        if (!softmax)
+            return;
+
+        Perceptron.printAccuracy(correct, sets);
+        correct = 0;
+    }
+}
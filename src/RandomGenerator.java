@@ -1,10 +1,43 @@
+import java.util.*;
+
 /**
- * Generates random numbers.
+ * Generates random numbers from a seedable stream that can be split into independent streams, so that work divided
+ * between threads draws the same numbers no matter how many threads there are.
  *
  * @author Brandon Park
- * @version 8/28/22
+ * @version 10/19/26
  */
 public class RandomGenerator {
+    private SplittableRandom random;
+
+    /**
+     * Constructs a new RandomGenerator object from a seed.
+     *
+     * @param seed the seed of the generator.
+     */
+    public RandomGenerator(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Constructs a new RandomGenerator object around an existing stream.
+     *
+     * @param random the stream of random numbers.
+     */
+    private RandomGenerator(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Splits off a new generator whose numbers are independent of this one. The generators split off from a given seed
+     * are always the same as long as they are split in the same order.
+     *
+     * @return returns the new generator.
+     */
+    public RandomGenerator split() {
+        return new RandomGenerator(random.split());
+    }
+
     /**
      * Generates a random double between min (inclusive) and max (exclusive).
      *
@@ -12,8 +45,43 @@ public class RandomGenerator {
      * @param max the upper bound of the random generation (exclusive).
      * @return returns a random double between min and max.
      */
-    public static double random(double min, double max) {
+    public double random(double min, double max) {
         double difference = max - min;
-        return difference * Math.random() + min;
+        return difference * random.nextDouble() + min;
+    }
+
+    /**
+     * Generates a random double from a normal distribution.
+     *
+     * @param mean              the mean of the distribution.
+     * @param standardDeviation the standard deviation of the distribution.
+     * @return returns a normally distributed random double.
+     */
+    public double gaussian(double mean, double standardDeviation) {
+        return random.nextGaussian(mean, standardDeviation);
+    }
+
+    /**
+     * Generates a random int between 0 (inclusive) and bound (exclusive).
+     *
+     * @param bound the upper bound of the random generation (exclusive).
+     * @return returns a random int between 0 and bound.
+     */
+    public int randomInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * Randomly reorders an array in place using the Fisher-Yates shuffle.
+     *
+     * @param order the array to shuffle.
+     */
+    public void shuffle(int[] order) {
+        for (int t = order.length - 1; t > 0; t--) {
+            int swap = random.nextInt(t + 1);
+            int temp = order[t];
+            order[t] = order[swap];
+            order[swap] = temp;
+        }
     }
 }
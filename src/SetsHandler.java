@@ -5,29 +5,39 @@ import java.io.*;
  * Handles the input of testing and training sets for the network.
  *
  * @author Brandon Park
- * @version 8/31/22
+ * @version 10/19/26
  */
 public class SetsHandler {
+    /*
+     * The number of different finger counts in the image sets, which is the number of output nodes needed to label
+     * them one-hot.
+     */
+    public static final int FINGER_COUNTS = 5;
+
     /**
      * Reads an array of training/testing sets from a text file.
      *
      * @param inputNodes  the number of input nodes in the network.
      * @param outputNodes the number of output nodes in the network.
      * @param filePath    the file path of the text file.
-     * @return returns the array of testing sets.
+     * @param oneHot      whether image sets should label each finger count as a separate output node rather than as a
+     *                    single scaled output.
+     * @return returns the array of testing sets, followed by the width and height of the images if they are image sets
+     * or null otherwise.
      */
-    public static Object[] readSets(int inputNodes, int outputNodes, String filePath) {
+    public static Object[] readSets(int inputNodes, int outputNodes, String filePath, boolean oneHot) {
         double[][] inputSets = null;
         double[][] outputSets = null;
+        int[] imageSize = null;
 
         if (filePath.equals("TRAINING_IMAGES")) {
             inputSets = new double[25][inputNodes];
             outputSets = new double[25][outputNodes];
-            getTrainingImages(inputSets, outputSets);
+            imageSize = getTrainingImages(inputSets, outputSets, oneHot);
         } else if (filePath.equals("TESTING_IMAGES")) {
             inputSets = new double[5][inputNodes];
             outputSets = new double[5][outputNodes];
-            getTestingImages(inputSets, outputSets);
+            imageSize = getTestingImages(inputSets, outputSets, oneHot);
         } else {
             try {
 
@@ -50,7 +60,7 @@ public class SetsHandler {
             }
         }
 
-        return new Object[]{inputSets, outputSets};
+        return new Object[]{inputSets, outputSets, imageSize};
     }
 
     /**
@@ -58,15 +68,21 @@ public class SetsHandler {
      *
      * @param inputSets  the array of input sets for the network.
      * @param outputSets the array of output sets for the network.
+     * @param oneHot     whether each finger count should be labeled as a separate output node.
+     * @return returns the width and height of the images.
      */
-    private static void getTrainingImages(double[][] inputSets, double[][] outputSets) {
+    private static int[] getTrainingImages(double[][] inputSets, double[][] outputSets, boolean oneHot) {
+        int[] imageSize = null;
+
         for (int i = 0; i < 5; i++) {
             for (int j = 0; j < 5; j++) {
-                inputSets[i * 5 + j] = ImageProcessor.getImage("src/hands/" + (int) (i + 1) + "_" + (int) (j + 1) +
-                        ".bmp");
-                outputSets[i * 5 + j] = new double[]{0.1 * (i + 1)};
+                imageSize = getImage("src/hands/" + (int) (i + 1) + "_" + (int) (j + 1) + ".bmp", inputSets,
+                        i * 5 + j, imageSize);
+                outputSets[i * 5 + j] = getLabel(i, oneHot);
             }
         }
+
+        return imageSize;
     }
 
     /**
@@ -74,11 +90,55 @@ public class SetsHandler {
      *
      * @param inputSets  the array of input sets for the network.
      * @param outputSets the array of output sets for the network.
+     * @param oneHot     whether each finger count should be labeled as a separate output node.
+     * @return returns the width and height of the images.
      */
-    private static void getTestingImages(double[][] inputSets, double[][] outputSets) {
+    private static int[] getTestingImages(double[][] inputSets, double[][] outputSets, boolean oneHot) {
+        int[] imageSize = null;
+
         for (int i = 0; i < 5; i++) {
-            inputSets[i] = ImageProcessor.getImage("src/hands/" + (int) (i + 1) + "_" + 6 + ".bmp");
-            outputSets[i] = new double[]{0.1 * (i + 1)};
+            imageSize = getImage("src/hands/" + (int) (i + 1) + "_" + 6 + ".bmp", inputSets, i, imageSize);
+            outputSets[i] = getLabel(i, oneHot);
+        }
+
+        return imageSize;
+    }
+
+    /**
+     * Reads in an image as an input set, checking that it is the same size as the images read before it.
+     *
+     * @param filePath  the file path of the image file.
+     * @param inputSets the array of input sets for the network.
+     * @param t         the index of the input set to read the image into.
+     * @param imageSize the width and height of the images read before it, or null if it is the first.
+     * @return returns the width and height of the image.
+     */
+    private static int[] getImage(String filePath, double[][] inputSets, int t, int[] imageSize) {
+        double[][] image = ImageProcessor.getImage(filePath);
+
+        if (imageSize != null && (image[0].length != imageSize[0] || image.length != imageSize[1])) {
+            System.out.println("Image at " + filePath + " is not the same size as the other images. Aborting process.");
+            System.exit(1);
         }
+
+        inputSets[t] = ImageProcessor.flatten(image);
+        return new int[]{image[0].length, image.length};
+    }
+
+    /**
+     * Gets the expected output for an image of a hand.
+     *
+     * @param i      the number of fingers in the image minus 1.
+     * @param oneHot whether each finger count should be labeled as a separate output node.
+     * @return returns a one-hot array over the 5 finger counts if oneHot, or a single output of 0.1 per finger
+     * otherwise.
+     */
+    private static double[] getLabel(int i, boolean oneHot) {
+        if (!oneHot)
+            return new double[]{0.1 * (i + 1)};
+
+        double[] label = new double[FINGER_COUNTS];
+        label[i] = 1.0;
+        return label;
     }
 }
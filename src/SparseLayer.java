@@ -0,0 +1,101 @@
+import java.util.*;
+
+/**
+ * Stores a pruned layer of weights in compressed sparse form, grouping the remaining connections by the node they feed
+ * into so that both the forward pass and the weight updates only visit connections that have not been pruned.
+ *
+ * @author Brandon Park
+ * @version 10/19/26
+ */
+public class SparseLayer {
+    public int inputs;
+    public int outputs;
+
+    /*
+     * The connections feeding into output node b are stored at positions start[b] (inclusive) to start[b + 1]
+     * (exclusive), where index holds the input node of each connection and values holds its weight.
+     */
+    public int[] start;
+    public int[] index;
+    public double[] values;
+
+    /**
+     * Constructs a new SparseLayer object from a dense layer of weights, keeping only the connections whose weights
+     * have a magnitude above a threshold.
+     *
+     * @param W         the dense layer of weights, where W[a][b] connects input node a to output node b.
+     * @param threshold the magnitude at or below which connections are pruned.
+     */
+    public SparseLayer(double[][] W, double threshold) {
+        inputs = W.length;
+        outputs = W[0].length;
+
+        start = new int[outputs + 1];
+        for (int b = 0; b < outputs; b++) {
+            start[b + 1] = start[b];
+            for (int a = 0; a < inputs; a++) {
+                if (Math.abs(W[a][b]) > threshold)
+                    start[b + 1]++;
+            }
+        }
+
+        index = new int[start[outputs]];
+        values = new double[start[outputs]];
+        for (int b = 0; b < outputs; b++) {
+            int p = start[b];
+            for (int a = 0; a < inputs; a++) {
+                if (Math.abs(W[a][b]) > threshold) {
+                    index[p] = a;
+                    values[p] = W[a][b];
+                    p++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the magnitude threshold that prunes a given fraction of a dense layer of weights.
+     *
+     * @param W        the dense layer of weights.
+     * @param sparsity the fraction of weights to prune, between 0 and 1.
+     * @return returns the largest magnitude that is pruned, or 0 if no nonzero weights need to be pruned.
+     */
+    public static double magnitudeThreshold(double[][] W, double sparsity) {
+        double[] magnitudes = new double[W.length * W[0].length];
+        for (int a = 0; a < W.length; a++) {
+            for (int b = 0; b < W[a].length; b++)
+                magnitudes[a * W[0].length + b] = Math.abs(W[a][b]);
+        }
+
+        int pruned = (int) Math.round(sparsity * magnitudes.length);
+        if (pruned == 0)
+            return 0.0;
+
+        Arrays.sort(magnitudes);
+        return magnitudes[Math.min(pruned, magnitudes.length) - 1];
+    }
+
+    /**
+     * Copies the remaining connections back into a dense layer of weights, setting pruned connections to 0.
+     *
+     * @param W the dense layer of weights.
+     */
+    public void toDense(double[][] W) {
+        for (int a = 0; a < inputs; a++)
+            Arrays.fill(W[a], 0.0);
+
+        for (int b = 0; b < outputs; b++) {
+            for (int p = start[b]; p < start[b + 1]; p++)
+                W[index[p]][b] = values[p];
+        }
+    }
+
+    /**
+     * Calculates the fraction of connections that have been pruned.
+     *
+     * @return returns the sparsity of the layer.
+     */
+    public double sparsity() {
+        return 1.0 - (double) values.length / ((double) inputs * outputs);
+    }
+}
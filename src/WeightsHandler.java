@@ -5,7 +5,7 @@ import java.io.*;
  * Handles the input and output of the network's weights.
  *
  * @author Brandon Park
- * @version 8/28/22
+ * @version 10/19/26
  */
 public class WeightsHandler {
     /**
@@ -25,20 +25,80 @@ public class WeightsHandler {
     }
 
     /**
-     * Initializes an array of weights to random values within a certain range.
+     * Generates a single random weight according to an initialization scheme.
      *
-     * @param nodes the number of nodes in each layer of the network.
-     * @param min   the lower bound of the random generation (inclusive).
-     * @param max   the upper bound of the random generation (exclusive).
+     * @param scheme    the initialization scheme, either "uniform" (between min and max), "xavier" (uniform within
+     *                  sqrt(6/(fan in + fan out))), or "he" (normal with standard deviation sqrt(2/fan in)).
+     * @param fanIn     the number of inputs feeding into the node the weight belongs to.
+     * @param fanOut    the number of outputs the weight's layer feeds into.
+     * @param min       the lower bound of uniform random generation (inclusive).
+     * @param max       the upper bound of uniform random generation (exclusive).
+     * @param generator the generator used for the random value.
+     * @return returns the random weight.
+     */
+    static double randomWeight(String scheme, int fanIn, int fanOut, double min, double max,
+                               RandomGenerator generator) {
+        if (scheme.equals("xavier")) {
+            double limit = Math.sqrt(6.0 / (fanIn + fanOut));
+            return generator.random(-limit, limit);
+        } else if (scheme.equals("he")) {
+            return generator.gaussian(0.0, Math.sqrt(2.0 / fanIn));
+        }
+        return generator.random(min, max);
+    }
+
+    /**
+     * Initializes an array of weights to random values. Each row of weights leaving a node draws from its own generator,
+     * split off in a fixed order, so the rows can be filled by any number of threads and still give the same weights
+     * for the same seed.
+     *
+     * @param nodes     the number of nodes in each layer of the network.
+     * @param scheme    the initialization scheme, either "uniform" (between min and max), "xavier" (uniform within
+     *                  sqrt(6/(fan in + fan out))), or "he" (normal with standard deviation sqrt(2/fan in)).
+     * @param min       the lower bound of uniform random generation (inclusive).
+     * @param max       the upper bound of uniform random generation (exclusive).
+     * @param generator the generator that each row's generator is split from.
+     * @param threads   the number of threads used to fill the weights.
      * @return returns the randomly initialized array of weights.
      */
-    public static double[][][] randomizeWeights(int[] nodes, double min, double max) {
+    public static double[][][] randomizeWeights(int[] nodes, String scheme, double min, double max,
+                                                RandomGenerator generator, int threads) {
         double[][][] W = initWeightsArray(nodes);
 
+        if (!scheme.equals("uniform") && !scheme.equals("xavier") && !scheme.equals("he")) {
+            System.out.println("Unknown weight initialization scheme " + scheme + ". Aborting process.");
+            System.exit(1);
+        }
+
         for (int n = 0; n < W.length; n++) {
-            for (int a = 0; a < W[n].length; a++) {
-                for (int b = 0; b < W[n][a].length; b++)
-                    W[n][a][b] = RandomGenerator.random(min, max);
+            double[][] layer = W[n];
+            int fanIn = nodes[n];
+            int fanOut = nodes[n + 1];
+
+            RandomGenerator[] rowGenerators = new RandomGenerator[layer.length];
+            for (int a = 0; a < layer.length; a++)
+                rowGenerators[a] = generator.split();
+
+            Thread[] workers = new Thread[threads];
+            for (int thread = 0; thread < threads; thread++) {
+                int first = layer.length * thread / threads;
+                int last = layer.length * (thread + 1) / threads;
+
+                workers[thread] = new Thread(() -> {
+                    for (int a = first; a < last; a++) {
+                        for (int b = 0; b < layer[a].length; b++)
+                            layer[a][b] = randomWeight(scheme, fanIn, fanOut, min, max, rowGenerators[a]);
+                    }
+                });
+                workers[thread].start();
+            }
+
+            try {
+                for (int thread = 0; thread < threads; thread++)
+                    workers[thread].join();
+            } catch (InterruptedException e) {
+                System.out.println("Interrupted during weight initialization. Aborting process.");
+                System.exit(1);
             }
         }
 
@@ -87,7 +147,8 @@ public class WeightsHandler {
     }
 
     /**
-     * Writes an array of weights to a text file.
+     * Writes an array of weights to a text file. Weights of exactly 0, such as pruned connections, are left out since
+     * readWeights treats any missing weight as 0.
      *
      * @param W        the array of weights.
      * @param filePath the file path of the text file.
@@ -102,6 +163,9 @@ public class WeightsHandler {
             for (int n = 0; n < W.length; n++) {
                 for (int a = 0; a < W[n].length; a++) {
                     for (int b = 0; b < W[n][a].length; b++) {
+                        if (W[n][a][b] == 0.0)
+                            continue;
+
                         result += n + " " + a + " " + b + " ";
                         result += W[n][a][b] + "\n";
                     }
@@ -116,4 +180,169 @@ public class WeightsHandler {
             System.exit(1);
         }
     }
+
+    /**
+     * Writes a quantized network to a binary file. The file contains the number of nodes in each layer, the activation
+     * scales, and then for each output node of each layer its weight scale followed by its int8 weights.
+     *
+     * @param quantized the quantized network.
+     * @param filePath  the file path of the binary file.
+     */
+    public static void writeQuantizedWeights(QuantizedPerceptron quantized, String filePath) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+
+            for (int alpha = 0; alpha < 4; alpha++)
+                out.writeInt(quantized.nodes[alpha]);
+            for (int alpha = 0; alpha < 3; alpha++)
+                out.writeDouble(quantized.activationScales[alpha]);
+
+            for (int n = 0; n < 3; n++) {
+                for (int b = 0; b < quantized.Q[n].length; b++) {
+                    out.writeDouble(quantized.weightScales[n][b]);
+                    out.write(quantized.Q[n][b]);
+                }
+            }
+
+            out.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Exception occurred during write to file. Aborting process.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads in a quantized network from a binary file written by writeQuantizedWeights.
+     *
+     * @param nodes         the number of nodes in each layer of the network.
+     * @param printDetailed whether the network should have detailed output or not.
+     * @param filePath      the file path of the binary file.
+     * @return returns the quantized network.
+     */
+    public static QuantizedPerceptron readQuantizedWeights(int[] nodes, boolean printDetailed, String filePath) {
+        QuantizedPerceptron quantized = new QuantizedPerceptron(nodes, printDetailed);
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)));
+
+            for (int alpha = 0; alpha < 4; alpha++) {
+                if (in.readInt() != nodes[alpha]) {
+                    System.out.println("Quantized weights file does not match network structure. Aborting process.");
+                    System.exit(1);
+                }
+            }
+            for (int alpha = 0; alpha < 3; alpha++)
+                quantized.activationScales[alpha] = in.readDouble();
+
+            for (int n = 0; n < 3; n++) {
+                for (int b = 0; b < nodes[n + 1]; b++) {
+                    quantized.weightScales[n][b] = in.readDouble();
+                    in.readFully(quantized.Q[n][b]);
+                }
+            }
+
+            in.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("Quantized weights file not found at " + filePath + ". Aborting process.");
+            System.exit(1);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Exception occurred during read from file. Aborting process.");
+            System.exit(1);
+        }
+
+        return quantized;
+    }
+
+    /**
+     * Writes the filters and biases of a convolution stage to a text file. Each line after the header holds a filter,
+     * a position within the filter, and its weight, where the position after the last pixel of the filter is its bias.
+     *
+     * @param conv     the convolution stage.
+     * @param filePath the file path of the text file.
+     */
+    public static void writeConvWeights(ConvLayer conv, String filePath) {
+        try {
+            FileWriter writer = new FileWriter(filePath);
+
+            StringBuilder result = new StringBuilder();
+            result.append(conv.filters + " " + conv.kernelSize + " " + conv.poolSize + "\n\n");
+
+            for (int f = 0; f < conv.filters; f++) {
+                for (int p = 0; p < conv.K[f].length; p++)
+                    result.append(f + " " + p + " " + conv.K[f][p] + "\n");
+                result.append(f + " " + conv.K[f].length + " " + conv.bias[f] + "\n");
+            }
+
+            writer.write(result.toString());
+            writer.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Exception occurred during write to file. Aborting process.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads in the filters and biases of a convolution stage from a text file written by writeConvWeights.
+     *
+     * @param conv     the convolution stage to read the weights into.
+     * @param filePath the file path of the text file.
+     */
+    public static void readConvWeights(ConvLayer conv, String filePath) {
+        try {
+            FileReader fileReader = new FileReader(filePath);
+            Scanner scanner = new Scanner(fileReader);
+
+            if (scanner.nextInt() != conv.filters || scanner.nextInt() != conv.kernelSize ||
+                    scanner.nextInt() != conv.poolSize) {
+                System.out.println("Convolution weights file does not match network structure. Aborting process.");
+                System.exit(1);
+            }
+
+            while (scanner.hasNext()) {
+                int f = scanner.nextInt();
+                int p = scanner.nextInt();
+                if (p == conv.K[f].length)
+                    conv.bias[f] = scanner.nextDouble();
+                else
+                    conv.K[f][p] = scanner.nextDouble();
+            }
+
+            scanner.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("Convolution weights file not found at " + filePath + ". Aborting process.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes rows of weights to a stream as raw binary doubles, with no header, for sending between processes that
+     * already agree on the network structure.
+     *
+     * @param parameters the rows of weights.
+     * @param out        the stream to write to.
+     * @throws IOException if an exception occurs during write.
+     */
+    public static void writeBinaryWeights(double[][] parameters, DataOutputStream out) throws IOException {
+        for (int row = 0; row < parameters.length; row++) {
+            for (int p = 0; p < parameters[row].length; p++)
+                out.writeDouble(parameters[row][p]);
+        }
+    }
+
+    /**
+     * Reads rows of weights written by writeBinaryWeights from a stream into existing rows of the same shape.
+     *
+     * @param parameters the rows of weights to read into.
+     * @param in         the stream to read from.
+     * @throws IOException if an exception occurs during read.
+     */
+    public static void readBinaryWeights(double[][] parameters, DataInputStream in) throws IOException {
+        for (int row = 0; row < parameters.length; row++) {
+            for (int p = 0; p < parameters[row].length; p++)
+                parameters[row][p] = in.readDouble();
+        }
+    }
 }